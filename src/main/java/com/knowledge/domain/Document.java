@@ -27,6 +27,10 @@ public class Document {
     @Column(name = "file_type")
     private String fileType;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "ingestion_status")
+    private IngestionStatus ingestionStatus;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
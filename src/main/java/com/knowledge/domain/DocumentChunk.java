@@ -27,6 +27,9 @@ public class DocumentChunk {
     @Column(name = "vector_id")
     private String vectorId;
 
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
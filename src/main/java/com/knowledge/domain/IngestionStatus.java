@@ -0,0 +1,7 @@
+package com.knowledge.domain;
+
+public enum IngestionStatus {
+    PENDING,
+    COMPLETED,
+    FAILED
+}
@@ -1,9 +1,33 @@
 package com.knowledge.repository;
 
 import com.knowledge.domain.DocumentChunk;
+import com.knowledge.domain.IngestionStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, Long> {
     List<DocumentChunk> findByDocumentId(Long documentId);
+
+    long countByDocumentIdAndVectorIdIsNull(Long documentId);
+
+    // Runs in its own transaction because it is called from afterCommit callbacks
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("update DocumentChunk c set c.publishedAt = :publishedAt where c.id in :ids")
+    int markPublished(@Param("ids") List<Long> ids, @Param("publishedAt") LocalDateTime publishedAt);
+
+    @Query("select c.id as id, c.document.id as documentId, c.chunkIndex as chunkIndex from DocumentChunk c "
+            + "where c.id > :afterId and c.vectorId is null and c.createdAt < :cutoff "
+            + "and (c.publishedAt is null or c.publishedAt < :cutoff) "
+            + "and c.document.ingestionStatus = :status order by c.id")
+    List<StalledChunk> findStalledChunks(@Param("afterId") Long afterId, @Param("cutoff") LocalDateTime cutoff,
+            @Param("status") IngestionStatus status, Pageable pageable);
 }
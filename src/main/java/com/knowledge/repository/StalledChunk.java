@@ -0,0 +1,9 @@
+package com.knowledge.repository;
+
+public interface StalledChunk {
+    Long getId();
+
+    Long getDocumentId();
+
+    Integer getChunkIndex();
+}
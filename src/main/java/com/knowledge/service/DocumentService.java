@@ -2,11 +2,12 @@ package com.knowledge.service;
 
 import com.knowledge.domain.Document;
 import com.knowledge.domain.DocumentChunk;
+import com.knowledge.domain.IngestionStatus;
 import com.knowledge.repository.DocumentChunkRepository;
 import com.knowledge.repository.DocumentRepository;
 import dev.langchain4j.model.embedding.EmbeddingModel;
-import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -17,13 +18,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Service
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class DocumentService {
 
     private final DocumentRepository documentRepository;
     private final DocumentChunkRepository chunkRepository;
     private final EmbeddingModel embeddingModel;
     private final VectorService vectorService;
+    private final IngestionQueue ingestionQueue;
+
+    @Value("${ingestion.mode:local}")
+    private String ingestionMode;
 
     @Transactional
     public Document uploadDocument(MultipartFile file, String title) throws IOException {
@@ -32,29 +37,34 @@ public class DocumentService {
         document.setTitle(title);
         document.setContent(new String(file.getBytes(), StandardCharsets.UTF_8));
         document.setFileType(file.getContentType());
-        document = documentRepository.save(document);
 
-        // Split content into chunks
+        // Split content into chunks; a document without chunks has nothing left to ingest
         List<String> chunks = splitContent(document.getContent());
-        List<DocumentChunk> documentChunks = new ArrayList<>();
+        boolean distributed = "distributed".equals(ingestionMode) && !chunks.isEmpty();
+        document.setIngestionStatus(distributed ? IngestionStatus.PENDING : IngestionStatus.COMPLETED);
+        document = documentRepository.save(document);
 
-        // Process each chunk
+        List<DocumentChunk> documentChunks = new ArrayList<>();
         for (int i = 0; i < chunks.size(); i++) {
-            String chunkContent = chunks.get(i);
-
-            // Create embedding and store in vector database
-            float[] embedding = embeddingModel.embed(chunkContent).content().vector();
-            String vectorId = vectorService.storeVector(embedding, document.getId(), i);
-
-            // Create document chunk
             DocumentChunk chunk = new DocumentChunk();
             chunk.setDocument(document);
-            chunk.setContent(chunkContent);
+            chunk.setContent(chunks.get(i));
             chunk.setChunkIndex(i);
-            chunk.setVectorId(vectorId);
             documentChunks.add(chunk);
         }
 
+        if (distributed) {
+            // Persist chunks without vectors and let the stream workers embed them
+            ingestionQueue.publish(chunkRepository.saveAll(documentChunks));
+            return document;
+        }
+
+        // Create embeddings and store them in vector database
+        for (DocumentChunk chunk : documentChunks) {
+            float[] embedding = embeddingModel.embed(chunk.getContent()).content().vector();
+            chunk.setVectorId(vectorService.storeVector(embedding, document.getId(), chunk.getChunkIndex()));
+        }
+
         chunkRepository.saveAll(documentChunks);
         return document;
     }
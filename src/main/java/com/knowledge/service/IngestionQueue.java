@@ -0,0 +1,111 @@
+package com.knowledge.service;
+
+import com.knowledge.domain.DocumentChunk;
+import com.knowledge.repository.DocumentChunkRepository;
+import com.knowledge.repository.StalledChunk;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import redis.clients.jedis.AbstractTransaction;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.StreamEntryID;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IngestionQueue {
+
+    static final String FIELD_CHUNK_ID = "chunk_id";
+    static final String FIELD_DOCUMENT_ID = "document_id";
+    static final String FIELD_CHUNK_INDEX = "chunk_index";
+
+    private final JedisPooled jedis;
+    private final DocumentChunkRepository chunkRepository;
+
+    @Value("${ingestion.stream.key:ingestion:chunks}")
+    private String streamKey;
+
+    public void publish(List<DocumentChunk> chunks) {
+        // Workers read chunk content from the database, so only publish once the
+        // chunks are committed and visible to other nodes
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    try {
+                        doPublish(chunks);
+                    } catch (Exception e) {
+                        // The document is already committed; IngestionSweeper republishes
+                        // chunks that are still missing vectors after the grace period
+                        log.warn("Failed to publish {} chunks, leaving them to the sweeper", chunks.size(), e);
+                    }
+                }
+            });
+        } else {
+            doPublish(chunks);
+        }
+    }
+
+    public void republish(List<StalledChunk> chunks) {
+        List<Long> chunkIds = new ArrayList<>();
+        List<Long> documentIds = new ArrayList<>();
+        List<Integer> chunkIndexes = new ArrayList<>();
+        for (StalledChunk chunk : chunks) {
+            chunkIds.add(chunk.getId());
+            documentIds.add(chunk.getDocumentId());
+            chunkIndexes.add(chunk.getChunkIndex());
+        }
+        doPublish(chunkIds, documentIds, chunkIndexes);
+    }
+
+    private void doPublish(List<DocumentChunk> chunks) {
+        List<Long> chunkIds = new ArrayList<>();
+        List<Long> documentIds = new ArrayList<>();
+        List<Integer> chunkIndexes = new ArrayList<>();
+        for (DocumentChunk chunk : chunks) {
+            chunkIds.add(chunk.getId());
+            documentIds.add(chunk.getDocument().getId());
+            chunkIndexes.add(chunk.getChunkIndex());
+        }
+        doPublish(chunkIds, documentIds, chunkIndexes);
+    }
+
+    private void doPublish(List<Long> chunkIds, List<Long> documentIds, List<Integer> chunkIndexes) {
+        Map<Long, List<Integer>> positionsByDocument = new LinkedHashMap<>();
+        for (int i = 0; i < chunkIds.size(); i++) {
+            positionsByDocument.computeIfAbsent(documentIds.get(i), id -> new ArrayList<>()).add(i);
+        }
+
+        // One MULTI per document, so a document is never left half published
+        for (Map.Entry<Long, List<Integer>> entry : positionsByDocument.entrySet()) {
+            List<Long> publishedIds = new ArrayList<>();
+            try (AbstractTransaction transaction = jedis.multi()) {
+                for (int i : entry.getValue()) {
+                    Map<String, String> fields = new HashMap<>();
+                    fields.put(FIELD_CHUNK_ID, String.valueOf(chunkIds.get(i)));
+                    fields.put(FIELD_DOCUMENT_ID, String.valueOf(entry.getKey()));
+                    fields.put(FIELD_CHUNK_INDEX, String.valueOf(chunkIndexes.get(i)));
+                    transaction.xadd(streamKey, StreamEntryID.NEW_ENTRY, fields);
+                    publishedIds.add(chunkIds.get(i));
+                }
+                transaction.exec();
+            }
+
+            // The sweeper skips chunks published within the grace period, since their
+            // entries are most likely still queued or pending in a consumer
+            chunkRepository.markPublished(publishedIds, LocalDateTime.now());
+            log.info("Published {} chunks of document {} to stream {}", publishedIds.size(), entry.getKey(),
+                    streamKey);
+        }
+    }
+}
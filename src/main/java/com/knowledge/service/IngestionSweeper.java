@@ -0,0 +1,77 @@
+package com.knowledge.service;
+
+import com.knowledge.domain.IngestionStatus;
+import com.knowledge.repository.DocumentChunkRepository;
+import com.knowledge.repository.StalledChunk;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.params.SetParams;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "ingestion.mode", havingValue = "distributed")
+public class IngestionSweeper {
+
+    private final JedisPooled jedis;
+    private final DocumentChunkRepository chunkRepository;
+    private final IngestionQueue ingestionQueue;
+
+    @Value("${ingestion.stream.key:ingestion:chunks}")
+    private String streamKey;
+
+    @Value("${ingestion.sweep.interval-ms:300000}")
+    private long intervalMs;
+
+    @Value("${ingestion.sweep.grace-ms:600000}")
+    private long graceMs;
+
+    @Value("${ingestion.sweep.page-size:500}")
+    private int pageSize;
+
+    // Republish chunks of pending documents that are still missing a vector and have not
+    // been published within the grace period, e.g. because the uploading node died first.
+    // Runs once on startup and then every interval, on one node at a time
+    @Scheduled(fixedDelayString = "${ingestion.sweep.interval-ms:300000}")
+    public void sweep() {
+        try {
+            String lock = jedis.set(streamKey + ":sweep-lock", "1", SetParams.setParams().nx().px(intervalMs));
+            if (lock == null) {
+                log.debug("Another node is sweeping stream {}", streamKey);
+                return;
+            }
+
+            // Chunks published within the grace period are skipped, so a backlog that is
+            // still draining is not appended to the stream a second time
+            LocalDateTime cutoff = LocalDateTime.now().minusNanos(graceMs * 1_000_000);
+            long afterId = 0;
+            int republished = 0;
+            List<StalledChunk> page;
+            do {
+                page = chunkRepository.findStalledChunks(afterId, cutoff, IngestionStatus.PENDING,
+                        PageRequest.of(0, pageSize));
+                if (page.isEmpty()) {
+                    break;
+                }
+                ingestionQueue.republish(page);
+                afterId = page.get(page.size() - 1).getId();
+                republished += page.size();
+            } while (page.size() == pageSize);
+
+            if (republished > 0) {
+                log.info("Republished {} stalled chunks", republished);
+            }
+        } catch (Exception e) {
+            log.error("Ingestion sweep failed", e);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.knowledge.service;
+
+import com.knowledge.domain.DocumentChunk;
+import com.knowledge.domain.IngestionStatus;
+import com.knowledge.repository.DocumentChunkRepository;
+import com.knowledge.repository.DocumentRepository;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.XAddParams;
+import redis.clients.jedis.params.XClaimParams;
+import redis.clients.jedis.params.XPendingParams;
+import redis.clients.jedis.params.XReadGroupParams;
+import redis.clients.jedis.resps.StreamEntry;
+import redis.clients.jedis.resps.StreamPendingEntry;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "ingestion.mode", havingValue = "distributed")
+public class IngestionWorker implements SmartLifecycle {
+
+    static final String FIELD_SOURCE_ID = "source_id";
+    static final String FIELD_DELIVERIES = "deliveries";
+    private static final long DEAD_LETTER_MAX_LEN = 10000;
+
+    private final JedisPooled jedis;
+    private final DocumentRepository documentRepository;
+    private final DocumentChunkRepository chunkRepository;
+    private final EmbeddingModel embeddingModel;
+    private final VectorService vectorService;
+
+    @Value("${ingestion.stream.key:ingestion:chunks}")
+    private String streamKey;
+
+    @Value("${ingestion.stream.group:ingestion-workers}")
+    private String groupName;
+
+    @Value("${ingestion.stream.dead-letter-key:ingestion:chunks:dead}")
+    private String deadLetterKey;
+
+    @Value("${ingestion.worker.threads:1}")
+    private int threads;
+
+    @Value("${ingestion.worker.batch-size:32}")
+    private int batchSize;
+
+    @Value("${ingestion.worker.block-ms:2000}")
+    private int blockMs;
+
+    @Value("${ingestion.worker.claim-idle-ms:60000}")
+    private long claimIdleMs;
+
+    @Value("${ingestion.worker.max-deliveries:5}")
+    private int maxDeliveries;
+
+    private final List<String> consumerNames = new ArrayList<>();
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    // Consumers run only while the application context is running, so nothing is
+    // consumed before startup has finished or after shutdown has begun
+    @Override
+    public void start() {
+        createGroupIfNotExists();
+
+        String consumerPrefix = hostName() + "-" + ProcessHandle.current().pid();
+        running = true;
+        consumerNames.clear();
+        executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            String consumerName = consumerPrefix + "-" + i;
+            consumerNames.add(consumerName);
+            executor.submit(() -> consume(consumerName));
+        }
+        log.info("Started {} ingestion workers on stream {} with group {}", threads, streamKey, groupName);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(blockMs + 5000L, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        removeConsumers();
+        log.info("Ingestion workers stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    void removeConsumers() {
+        // Consumer names include the pid, so each restart would otherwise leave its
+        // consumers behind in the group. Consumers that still own pending entries are
+        // kept so those entries can be reclaimed by the other nodes
+        for (String consumerName : consumerNames) {
+            try {
+                List<StreamPendingEntry> pending = jedis.xpending(streamKey, groupName,
+                        XPendingParams.xPendingParams("-", "+", 1).consumer(consumerName));
+                if (pending.isEmpty()) {
+                    jedis.xgroupDelConsumer(streamKey, groupName, consumerName);
+                    log.info("Removed consumer {} from group {}", consumerName, groupName);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to remove consumer {} from group {}", consumerName, groupName, e);
+            }
+        }
+        consumerNames.clear();
+    }
+
+    private void createGroupIfNotExists() {
+        try {
+            jedis.xgroupCreate(streamKey, groupName, new StreamEntryID(), true);
+            log.info("Created consumer group {} on stream {}", groupName, streamKey);
+        } catch (JedisDataException e) {
+            if (e.getMessage() == null || !e.getMessage().startsWith("BUSYGROUP")) {
+                throw e;
+            }
+            log.info("Consumer group {} already exists on stream {}", groupName, streamKey);
+        }
+    }
+
+    private void consume(String consumerName) {
+        log.info("Ingestion worker {} started", consumerName);
+        long lastClaim = 0;
+        while (running) {
+            try {
+                // Take over entries left pending by consumers that died mid-batch or
+                // failed them, and dead-letter the ones that ran out of attempts
+                if (System.currentTimeMillis() - lastClaim >= claimIdleMs) {
+                    reclaimPending(consumerName);
+                    lastClaim = System.currentTimeMillis();
+                }
+
+                List<Map.Entry<String, List<StreamEntry>>> response = jedis.xreadGroup(groupName, consumerName,
+                        XReadGroupParams.xReadGroupParams().count(batchSize).block(blockMs),
+                        Collections.singletonMap(streamKey, StreamEntryID.UNRECEIVED_ENTRY));
+                if (response == null) {
+                    continue;
+                }
+                for (Map.Entry<String, List<StreamEntry>> stream : response) {
+                    process(stream.getValue());
+                }
+            } catch (Exception e) {
+                log.error("Ingestion worker {} failed, retrying", consumerName, e);
+                sleepQuietly(blockMs);
+            }
+        }
+        log.info("Ingestion worker {} stopped", consumerName);
+    }
+
+    void reclaimPending(String consumerName) {
+        List<StreamPendingEntry> idle;
+        do {
+            idle = jedis.xpending(streamKey, groupName,
+                    XPendingParams.xPendingParams("-", "+", batchSize).idle(claimIdleMs));
+            List<StreamEntryID> retryIds = new ArrayList<>();
+            for (StreamPendingEntry pendingEntry : idle) {
+                if (pendingEntry.getDeliveredTimes() >= maxDeliveries) {
+                    deadLetter(consumerName, pendingEntry);
+                } else {
+                    retryIds.add(pendingEntry.getID());
+                }
+            }
+            if (retryIds.isEmpty()) {
+                continue;
+            }
+
+            // XCLAIM resets the idle time, so entries that fail again drop out of the
+            // idle listing until the next round
+            List<StreamEntry> claimed = new ArrayList<>();
+            for (StreamEntry entry : jedis.xclaim(streamKey, groupName, consumerName, claimIdleMs,
+                    XClaimParams.xClaimParams(), retryIds.toArray(new StreamEntryID[0]))) {
+                if (entry != null) {
+                    claimed.add(entry);
+                }
+            }
+            log.info("Worker {} reclaimed {} pending entries", consumerName, claimed.size());
+            process(claimed);
+        } while (running && idle.size() == batchSize);
+    }
+
+    void process(List<StreamEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        try {
+            processBatch(entries);
+            return;
+        } catch (Exception e) {
+            if (entries.size() == 1) {
+                log.warn("Entry {} failed, leaving it pending for retry", entries.get(0).getID(), e);
+                return;
+            }
+            log.warn("Batch of {} entries failed, retrying them one by one", entries.size(), e);
+        }
+
+        // Isolate the failing entries so the healthy chunks of the batch still get acknowledged
+        for (StreamEntry entry : entries) {
+            try {
+                processBatch(Collections.singletonList(entry));
+            } catch (Exception e) {
+                log.warn("Entry {} failed, leaving it pending for retry", entry.getID(), e);
+            }
+        }
+    }
+
+    private void processBatch(List<StreamEntry> entries) {
+        List<Long> chunkIds = new ArrayList<>();
+        StreamEntryID[] entryIds = new StreamEntryID[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            StreamEntry entry = entries.get(i);
+            entryIds[i] = entry.getID();
+            chunkIds.add(Long.valueOf(entry.getFields().get(IngestionQueue.FIELD_CHUNK_ID)));
+        }
+
+        // Chunks that already have a vector were embedded by a consumer that died
+        // before acknowledging; only the acknowledgement is missing
+        List<DocumentChunk> pending = new ArrayList<>();
+        List<Long> loadedDocumentIds = new ArrayList<>();
+        for (DocumentChunk chunk : chunkRepository.findAllById(chunkIds)) {
+            loadedDocumentIds.add(chunk.getDocument().getId());
+            if (chunk.getVectorId() == null) {
+                pending.add(chunk);
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            List<TextSegment> segments = new ArrayList<>();
+            List<Long> documentIds = new ArrayList<>();
+            List<Integer> chunkIndexes = new ArrayList<>();
+            for (DocumentChunk chunk : pending) {
+                segments.add(TextSegment.from(chunk.getContent()));
+                documentIds.add(chunk.getDocument().getId());
+                chunkIndexes.add(chunk.getChunkIndex());
+            }
+
+            List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
+            List<float[]> vectors = new ArrayList<>();
+            for (Embedding embedding : embeddings) {
+                vectors.add(embedding.vector());
+            }
+
+            List<String> vectorIds = vectorService.storeVectors(vectors, documentIds, chunkIndexes);
+            for (int i = 0; i < pending.size(); i++) {
+                pending.get(i).setVectorId(vectorIds.get(i));
+            }
+            chunkRepository.saveAll(pending);
+        }
+
+        // Checked for every loaded chunk, not only the ones embedded here, so a
+        // redelivery after a crash between saveAll and the ack still completes the document
+        markCompleted(loadedDocumentIds);
+
+        acknowledge(entryIds);
+        log.info("Embedded {} chunks, acknowledged {} entries", pending.size(), entryIds.length);
+    }
+
+    private void deadLetter(String consumerName, StreamPendingEntry pendingEntry) {
+        // Claim the entry first so that only one consumer dead-letters it, and only
+        // if no live consumer has touched it within the idle window
+        StreamEntryID entryId = pendingEntry.getID();
+        List<StreamEntry> claimed = jedis.xclaim(streamKey, groupName, consumerName, claimIdleMs,
+                XClaimParams.xClaimParams(), entryId);
+        if (claimed.isEmpty()) {
+            return;
+        }
+
+        StreamEntry entry = claimed.get(0);
+        if (entry != null) {
+            Map<String, String> fields = new HashMap<>(entry.getFields());
+            fields.put(FIELD_SOURCE_ID, entryId.toString());
+            fields.put(FIELD_DELIVERIES, String.valueOf(pendingEntry.getDeliveredTimes()));
+            jedis.xadd(deadLetterKey, XAddParams.xAddParams().maxLen(DEAD_LETTER_MAX_LEN).approximateTrimming(),
+                    fields);
+            markFailed(fields.get(IngestionQueue.FIELD_DOCUMENT_ID));
+            log.error("Entry {} failed {} times, moved to {}", entryId, pendingEntry.getDeliveredTimes(),
+                    deadLetterKey);
+        }
+        // A null entry was already deleted from the stream; only its pending slot is left
+        acknowledge(entryId);
+    }
+
+    private void acknowledge(StreamEntryID... entryIds) {
+        // Acknowledged entries are no longer needed; deleting them keeps the stream bounded
+        jedis.xack(streamKey, groupName, entryIds);
+        jedis.xdel(streamKey, entryIds);
+    }
+
+    private void markCompleted(List<Long> documentIds) {
+        for (Long documentId : new LinkedHashSet<>(documentIds)) {
+            if (chunkRepository.countByDocumentIdAndVectorIdIsNull(documentId) > 0) {
+                continue;
+            }
+            documentRepository.findById(documentId).ifPresent(document -> {
+                if (document.getIngestionStatus() == IngestionStatus.PENDING) {
+                    document.setIngestionStatus(IngestionStatus.COMPLETED);
+                    documentRepository.save(document);
+                    log.info("Document {} ingestion completed", documentId);
+                }
+            });
+        }
+    }
+
+    private void markFailed(String documentId) {
+        if (documentId == null) {
+            return;
+        }
+        documentRepository.findById(Long.valueOf(documentId)).ifPresent(document -> {
+            document.setIngestionStatus(IngestionStatus.FAILED);
+            documentRepository.save(document);
+        });
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -16,6 +16,7 @@ import io.milvus.param.IndexType;
 import io.milvus.param.collection.*;
 import io.milvus.param.dml.InsertParam;
 import io.milvus.param.dml.SearchParam;
+import io.milvus.param.dml.UpsertParam;
 import io.milvus.param.index.CreateIndexParam;
 import io.milvus.response.SearchResultsWrapper;
 import lombok.RequiredArgsConstructor;
@@ -24,6 +25,7 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.UUID;
 import java.util.ArrayList;
@@ -47,36 +49,53 @@ public class VectorService implements InitializingBean {
     private int vectorDimension;
 
     public String storeVector(float[] vector, Long documentId, int chunkIndex) {
-        String vectorId = UUID.randomUUID().toString();
-        log.info("Storing vector with ID: {}, document ID: {}, chunk index: {}", vectorId, documentId, chunkIndex);
+        return storeVectors(List.of(vector), List.of(documentId), List.of(chunkIndex)).get(0);
+    }
 
-        // Convert float[] to List<Float>
-        List<Float> vectorList = new ArrayList<>();
-        for (float v : vector) {
-            vectorList.add(v);
+    public List<String> storeVectors(List<float[]> vectors, List<Long> documentIds, List<Integer> chunkIndexes) {
+        log.info("Storing {} vectors in one batch", vectors.size());
+
+        // Vector IDs are derived from the chunk position and written with upsert, so
+        // re-storing a chunk after a failed or redelivered attempt overwrites the
+        // earlier vector instead of leaving an orphan behind
+        List<String> vectorIds = new ArrayList<>();
+        List<List<Float>> vectorLists = new ArrayList<>();
+        for (int i = 0; i < vectors.size(); i++) {
+            vectorIds.add(vectorId(documentIds.get(i), chunkIndexes.get(i)));
+
+            // Convert float[] to List<Float>
+            List<Float> vectorList = new ArrayList<>();
+            for (float v : vectors.get(i)) {
+                vectorList.add(v);
+            }
+            vectorLists.add(vectorList);
         }
 
-        log.info("vectorId={},vectorList={},documentId={},chunkIndex={}", vectorId, vectorList, documentId, chunkIndex);
+        log.info("vectorIds={},documentIds={},chunkIndexes={}", vectorIds, documentIds, chunkIndexes);
 
         List<InsertParam.Field> fields = new ArrayList<>();
-        fields.add(new InsertParam.Field("vector_id", Collections.singletonList(vectorId)));
-        fields.add(new InsertParam.Field("vector", Collections.singletonList(vectorList)));
-        fields.add(new InsertParam.Field("document_id", Collections.singletonList(documentId)));
-        fields.add(new InsertParam.Field("chunk_index", Collections.singletonList(chunkIndex)));
+        fields.add(new InsertParam.Field("vector_id", vectorIds));
+        fields.add(new InsertParam.Field("vector", vectorLists));
+        fields.add(new InsertParam.Field("document_id", documentIds));
+        fields.add(new InsertParam.Field("chunk_index", chunkIndexes));
 
-        InsertParam insertParam = InsertParam.newBuilder()
+        UpsertParam upsertParam = UpsertParam.newBuilder()
                 .withCollectionName(COLLECTION_NAME)
                 .withFields(fields)
                 .build();
 
-        R<MutationResult> response = milvusClient.insert(insertParam);
-        log.info("Insert vector response status: {}", response.getStatus());
+        R<MutationResult> response = milvusClient.upsert(upsertParam);
+        log.info("Upsert vectors response status: {}", response.getStatus());
         if (response.getStatus() != 0) {
-            log.error("Failed to insert vector: {}", response.getMessage());
-            throw new RuntimeException("Failed to insert vector: " + response.getMessage());
+            log.error("Failed to upsert vectors: {}", response.getMessage());
+            throw new RuntimeException("Failed to upsert vectors: " + response.getMessage());
         }
 
-        return vectorId;
+        return vectorIds;
+    }
+
+    static String vectorId(Long documentId, int chunkIndex) {
+        return UUID.nameUUIDFromBytes((documentId + ":" + chunkIndex).getBytes(StandardCharsets.UTF_8)).toString();
     }
 
     public List<Map<String, Object>> searchSimilarVectors(String query, int limit) {
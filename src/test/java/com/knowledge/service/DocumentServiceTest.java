@@ -0,0 +1,80 @@
+package com.knowledge.service;
+
+import com.knowledge.domain.Document;
+import com.knowledge.domain.IngestionStatus;
+import com.knowledge.repository.DocumentChunkRepository;
+import com.knowledge.repository.DocumentRepository;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentServiceTest {
+
+    @Mock
+    private DocumentRepository documentRepository;
+
+    @Mock
+    private DocumentChunkRepository chunkRepository;
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @Mock
+    private VectorService vectorService;
+
+    @Mock
+    private IngestionQueue ingestionQueue;
+
+    private DocumentService documentService;
+
+    @BeforeEach
+    void setUp() {
+        documentService = new DocumentService(documentRepository, chunkRepository, embeddingModel, vectorService,
+                ingestionQueue);
+        ReflectionTestUtils.setField(documentService, "ingestionMode", "distributed");
+        when(documentRepository.save(any(Document.class))).thenAnswer(invocation -> {
+            Document document = invocation.getArgument(0);
+            document.setId(1L);
+            return document;
+        });
+    }
+
+    @Test
+    void distributedUploadWithoutChunksIsCompletedImmediately() throws Exception {
+        Document document = documentService.uploadDocument(file("  \n\n \n\n"), "blank");
+
+        assertEquals(IngestionStatus.COMPLETED, document.getIngestionStatus());
+        verifyNoInteractions(ingestionQueue);
+    }
+
+    @Test
+    void distributedUploadIsPendingUntilWorkersEmbedIt() throws Exception {
+        when(chunkRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Document document = documentService.uploadDocument(file("first\n\nsecond"), "two paragraphs");
+
+        assertEquals(IngestionStatus.PENDING, document.getIngestionStatus());
+        verify(ingestionQueue).publish(anyList());
+        verifyNoInteractions(embeddingModel, vectorService);
+    }
+
+    private static MockMultipartFile file(String content) {
+        return new MockMultipartFile("file", "doc.txt", "text/plain", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,103 @@
+package com.knowledge.service;
+
+import com.knowledge.domain.Document;
+import com.knowledge.domain.DocumentChunk;
+import com.knowledge.repository.DocumentChunkRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import redis.clients.jedis.AbstractTransaction;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.StreamEntryID;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionQueueTest {
+
+    private static final String STREAM_KEY = "ingestion:chunks";
+
+    @Mock
+    private JedisPooled jedis;
+
+    @Mock
+    private AbstractTransaction transaction;
+
+    @Mock
+    private DocumentChunkRepository chunkRepository;
+
+    private IngestionQueue queue;
+    private List<DocumentChunk> chunks;
+
+    @BeforeEach
+    void setUp() {
+        queue = new IngestionQueue(jedis, chunkRepository);
+        ReflectionTestUtils.setField(queue, "streamKey", STREAM_KEY);
+
+        Document document = new Document();
+        document.setId(1L);
+        chunks = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            DocumentChunk chunk = new DocumentChunk();
+            chunk.setId(10L + i);
+            chunk.setDocument(document);
+            chunk.setChunkIndex(i);
+            chunks.add(chunk);
+        }
+
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void publishWaitsForTransactionCommit() {
+        when(jedis.multi()).thenReturn(transaction);
+
+        queue.publish(chunks);
+        verify(jedis, never()).multi();
+
+        commit();
+
+        verify(transaction, times(2)).xadd(eq(STREAM_KEY), eq(StreamEntryID.NEW_ENTRY), anyMap());
+        verify(transaction).exec();
+        verify(chunkRepository).markPublished(eq(List.of(10L, 11L)), any(LocalDateTime.class));
+    }
+
+    @Test
+    void publishFailureAfterCommitIsLeftToSweeper() {
+        when(jedis.multi()).thenThrow(new RuntimeException("redis unavailable"));
+
+        queue.publish(chunks);
+
+        assertDoesNotThrow(this::commit);
+        verify(chunkRepository, never()).markPublished(anyList(), any());
+    }
+
+    private void commit() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.knowledge.service;
+
+import com.knowledge.domain.Document;
+import com.knowledge.domain.DocumentChunk;
+import com.knowledge.domain.IngestionStatus;
+import com.knowledge.repository.DocumentChunkRepository;
+import com.knowledge.repository.DocumentRepository;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.params.XAddParams;
+import redis.clients.jedis.params.XClaimParams;
+import redis.clients.jedis.params.XPendingParams;
+import redis.clients.jedis.resps.StreamEntry;
+import redis.clients.jedis.resps.StreamPendingEntry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionWorkerTest {
+
+    private static final String STREAM_KEY = "ingestion:chunks";
+    private static final String GROUP_NAME = "ingestion-workers";
+    private static final String DEAD_LETTER_KEY = "ingestion:chunks:dead";
+    private static final String CONSUMER_NAME = "node-1-0";
+    private static final long CLAIM_IDLE_MS = 60000;
+
+    @Mock
+    private JedisPooled jedis;
+
+    @Mock
+    private DocumentRepository documentRepository;
+
+    @Mock
+    private DocumentChunkRepository chunkRepository;
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @Mock
+    private VectorService vectorService;
+
+    private IngestionWorker worker;
+    private Document document;
+
+    @BeforeEach
+    void setUp() {
+        worker = new IngestionWorker(jedis, documentRepository, chunkRepository, embeddingModel, vectorService);
+        ReflectionTestUtils.setField(worker, "streamKey", STREAM_KEY);
+        ReflectionTestUtils.setField(worker, "groupName", GROUP_NAME);
+        ReflectionTestUtils.setField(worker, "deadLetterKey", DEAD_LETTER_KEY);
+        ReflectionTestUtils.setField(worker, "batchSize", 32);
+        ReflectionTestUtils.setField(worker, "claimIdleMs", CLAIM_IDLE_MS);
+        ReflectionTestUtils.setField(worker, "maxDeliveries", 5);
+
+        document = new Document();
+        document.setId(1L);
+        document.setIngestionStatus(IngestionStatus.PENDING);
+    }
+
+    @Test
+    void acknowledgesEntriesWhoseChunksAlreadyHaveVectors() {
+        DocumentChunk chunk = chunk(10L, 0, "already embedded");
+        chunk.setVectorId("vector-10");
+        StreamEntry entry = entry("1-0", 10L);
+        when(chunkRepository.findAllById(List.of(10L))).thenReturn(List.of(chunk));
+        when(chunkRepository.countByDocumentIdAndVectorIdIsNull(1L)).thenReturn(0L);
+        when(documentRepository.findById(1L)).thenReturn(Optional.of(document));
+
+        worker.process(List.of(entry));
+
+        verifyNoInteractions(embeddingModel, vectorService);
+        assertEquals(IngestionStatus.COMPLETED, document.getIngestionStatus());
+        verify(jedis).xack(STREAM_KEY, GROUP_NAME, entry.getID());
+        verify(jedis).xdel(STREAM_KEY, entry.getID());
+    }
+
+    @Test
+    void embedsPendingChunksAndCompletesDocument() {
+        DocumentChunk chunk = chunk(10L, 0, "first paragraph");
+        StreamEntry entry = entry("1-0", 10L);
+        when(chunkRepository.findAllById(List.of(10L))).thenReturn(List.of(chunk));
+        when(embeddingModel.embedAll(anyList()))
+                .thenReturn(Response.from(List.of(Embedding.from(new float[]{0.1f, 0.2f}))));
+        when(vectorService.storeVectors(anyList(), any(), any())).thenReturn(List.of("vector-10"));
+        when(chunkRepository.countByDocumentIdAndVectorIdIsNull(1L)).thenReturn(0L);
+        when(documentRepository.findById(1L)).thenReturn(Optional.of(document));
+
+        worker.process(List.of(entry));
+
+        assertEquals("vector-10", chunk.getVectorId());
+        assertEquals(IngestionStatus.COMPLETED, document.getIngestionStatus());
+        verify(chunkRepository).saveAll(List.of(chunk));
+        verify(jedis).xack(STREAM_KEY, GROUP_NAME, entry.getID());
+    }
+
+    @Test
+    void doesNotAcknowledgeFailedBatch() {
+        DocumentChunk chunk = chunk(10L, 0, "first paragraph");
+        StreamEntry entry = entry("1-0", 10L);
+        when(chunkRepository.findAllById(List.of(10L))).thenReturn(List.of(chunk));
+        when(embeddingModel.embedAll(anyList())).thenThrow(new RuntimeException("embedding failed"));
+
+        worker.process(List.of(entry));
+
+        verify(jedis, never()).xack(any(), any(), any(StreamEntryID[].class));
+        verify(jedis, never()).xdel(any(), any(StreamEntryID[].class));
+    }
+
+    @Test
+    void retriesFailedBatchOneByOneSoHealthyEntriesAreAcknowledged() {
+        DocumentChunk good = chunk(10L, 0, "good paragraph");
+        DocumentChunk bad = chunk(11L, 1, "bad paragraph");
+        StreamEntry goodEntry = entry("1-0", 10L);
+        StreamEntry badEntry = entry("1-1", 11L);
+        when(chunkRepository.findAllById(List.of(10L, 11L))).thenReturn(List.of(good, bad));
+        when(chunkRepository.findAllById(List.of(10L))).thenReturn(List.of(good));
+        when(chunkRepository.findAllById(List.of(11L))).thenReturn(List.of(bad));
+        when(embeddingModel.embedAll(anyList())).thenAnswer(invocation -> {
+            List<TextSegment> segments = invocation.getArgument(0);
+            if (segments.stream().anyMatch(segment -> segment.text().startsWith("bad"))) {
+                throw new RuntimeException("embedding failed");
+            }
+            return Response.from(List.of(Embedding.from(new float[]{0.1f, 0.2f})));
+        });
+        when(vectorService.storeVectors(anyList(), any(), any())).thenReturn(List.of("vector-10"));
+        when(chunkRepository.countByDocumentIdAndVectorIdIsNull(1L)).thenReturn(1L);
+
+        worker.process(List.of(goodEntry, badEntry));
+
+        verify(jedis).xack(STREAM_KEY, GROUP_NAME, goodEntry.getID());
+        verify(jedis, never()).xack(STREAM_KEY, GROUP_NAME, badEntry.getID());
+        verify(jedis, never()).xack(STREAM_KEY, GROUP_NAME, goodEntry.getID(), badEntry.getID());
+    }
+
+    @Test
+    void deadLettersExhaustedEntryOnlyAfterClaimingIt() {
+        StreamEntry entry = entry("1-0", 10L);
+        when(jedis.xpending(eq(STREAM_KEY), eq(GROUP_NAME), any(XPendingParams.class)))
+                .thenReturn(List.of(new StreamPendingEntry(entry.getID(), "node-2-0", CLAIM_IDLE_MS, 5)));
+        when(jedis.xclaim(eq(STREAM_KEY), eq(GROUP_NAME), eq(CONSUMER_NAME), eq(CLAIM_IDLE_MS),
+                any(XClaimParams.class), eq(entry.getID()))).thenReturn(List.of(entry));
+        when(documentRepository.findById(1L)).thenReturn(Optional.of(document));
+
+        worker.reclaimPending(CONSUMER_NAME);
+
+        verify(jedis).xadd(eq(DEAD_LETTER_KEY), any(XAddParams.class), anyMap());
+        verify(jedis).xack(STREAM_KEY, GROUP_NAME, entry.getID());
+        assertEquals(IngestionStatus.FAILED, document.getIngestionStatus());
+    }
+
+    @Test
+    void skipsExhaustedEntryClaimedByAnotherConsumer() {
+        StreamEntry entry = entry("1-0", 10L);
+        when(jedis.xpending(eq(STREAM_KEY), eq(GROUP_NAME), any(XPendingParams.class)))
+                .thenReturn(List.of(new StreamPendingEntry(entry.getID(), "node-2-0", CLAIM_IDLE_MS, 5)));
+        when(jedis.xclaim(eq(STREAM_KEY), eq(GROUP_NAME), eq(CONSUMER_NAME), eq(CLAIM_IDLE_MS),
+                any(XClaimParams.class), eq(entry.getID()))).thenReturn(List.of());
+
+        worker.reclaimPending(CONSUMER_NAME);
+
+        verify(jedis, never()).xadd(eq(DEAD_LETTER_KEY), any(XAddParams.class), anyMap());
+        verify(jedis, never()).xack(any(), any(), any(StreamEntryID[].class));
+        assertEquals(IngestionStatus.PENDING, document.getIngestionStatus());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void removesOnlyConsumersWithoutPendingEntries() {
+        List<String> consumerNames = (List<String>) ReflectionTestUtils.getField(worker, "consumerNames");
+        consumerNames.addAll(List.of("node-1-0", "node-1-1"));
+        when(jedis.xpending(eq(STREAM_KEY), eq(GROUP_NAME), any(XPendingParams.class)))
+                .thenReturn(List.of())
+                .thenReturn(List.of(new StreamPendingEntry(new StreamEntryID("1-0"), "node-1-1", 100, 1)));
+
+        worker.removeConsumers();
+
+        verify(jedis).xgroupDelConsumer(STREAM_KEY, GROUP_NAME, "node-1-0");
+        verify(jedis, never()).xgroupDelConsumer(STREAM_KEY, GROUP_NAME, "node-1-1");
+    }
+
+    private DocumentChunk chunk(Long id, int chunkIndex, String content) {
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setId(id);
+        chunk.setDocument(document);
+        chunk.setChunkIndex(chunkIndex);
+        chunk.setContent(content);
+        return chunk;
+    }
+
+    private static StreamEntry entry(String id, Long chunkId) {
+        return new StreamEntry(new StreamEntryID(id), Map.of(
+                IngestionQueue.FIELD_CHUNK_ID, String.valueOf(chunkId),
+                IngestionQueue.FIELD_DOCUMENT_ID, "1"));
+    }
+}